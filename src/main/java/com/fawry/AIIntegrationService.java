@@ -38,13 +38,21 @@ public class AIIntegrationService {
      * Main entry: give it damaged XPaths and an XML snapshot file path.
      */
     public List<String> analyzeAndGenerateXPaths(List<String> damagedXPaths, String xmlSnapshotPath) {
+        return analyzeAndGenerateXPaths(damagedXPaths, xmlSnapshotPath, List.of());
+    }
+
+    /**
+     * Same as above, with the closest elements found by the similarity index passed as hints.
+     */
+    public List<String> analyzeAndGenerateXPaths(List<String> damagedXPaths, String xmlSnapshotPath,
+                                                 List<SimilarityIndex.Candidate> candidates) {
         try {
             String xmlSnapshotContent = readFileContent(xmlSnapshotPath);
             if (xmlSnapshotContent == null) xmlSnapshotContent = "";
 
             Log.info("XML Snapshot content sent to AI model:\n" + xmlSnapshotContent);
 
-            String prompt = createAnalysisPrompt(damagedXPaths, xmlSnapshotContent);
+            String prompt = createAnalysisPrompt(damagedXPaths, xmlSnapshotContent, candidates);
             Log.info("Sending request to AI model with prompt:\n" + prompt);
 
             String aiResponse = callQwenMoeAPI(prompt);
@@ -126,7 +134,8 @@ public class AIIntegrationService {
     /**
      * Prompt builder that now prefers By.id() locators when possible.
      */
-    private String createAnalysisPrompt(List<String> damagedLocators, String xmlSnapshot) {
+    private String createAnalysisPrompt(List<String> damagedLocators, String xmlSnapshot,
+                                        List<SimilarityIndex.Candidate> candidates) {
         boolean hasIOS = damagedLocators.stream().anyMatch(l ->
                 l.contains("XCUIElementType") || l.contains("name") || l.contains("label"));
         boolean hasAndroid = damagedLocators.stream().anyMatch(l ->
@@ -167,6 +176,13 @@ public class AIIntegrationService {
             listBuilder.append(i + 1).append(". ").append(damagedLocators.get(i)).append("\n");
         }
 
+        StringBuilder candidateBuilder = new StringBuilder();
+        for (SimilarityIndex.Candidate candidate : candidates) {
+            candidateBuilder.append("- ").append(candidate).append("\n");
+        }
+        String candidateSection = candidateBuilder.length() == 0 ? "" :
+                "3. Closest Elements (approximate similarity, best first):\n" + candidateBuilder + "\n";
+
         String rules = """
                 - For each damaged locator, return ONLY one corrected locator (one per line, no explanations).
                 - This new type for pos device if damage locator contain this prefer return this type returning a native locator (e.g., By.id("com.fawry.retailer:id/...")) if the exact resource-id exists in the XML.
@@ -197,12 +213,14 @@ public class AIIntegrationService {
                         "INPUT:\n" +
                         "1. Damaged Locators:\n%s\n\n" +
                         "2. Current XML Snapshot:\n'''\n%s\n'''\n\n" +
+                        "%s" +
                         "RULES:\n%s\n" +
                         "EXAMPLE:\n%s",
                 platform,
                 learningHint,
                 listBuilder.toString().trim(),
                 xmlSnapshot,
+                candidateSection,
                 rules,
                 platformExamples
         );
@@ -240,8 +258,12 @@ public class AIIntegrationService {
      * Example runner.
      */
     public List<String> autoAnalyzeAndFix(List<String> damagedXPaths) {
+        return autoAnalyzeAndFix(damagedXPaths, List.of());
+    }
+
+    public List<String> autoAnalyzeAndFix(List<String> damagedXPaths, List<SimilarityIndex.Candidate> candidates) {
         String timestamp = LocalDateTime.now().format(FILE_TIMESTAMP_FORMAT);
         String xmlSnapshotPath = "xml_snapshots/snapshot_" + timestamp + ".xml";
-        return analyzeAndGenerateXPaths(damagedXPaths, xmlSnapshotPath);
+        return analyzeAndGenerateXPaths(damagedXPaths, xmlSnapshotPath, candidates);
     }
 }
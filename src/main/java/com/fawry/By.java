@@ -1,15 +1,24 @@
 package com.fawry;
 
+import com.fawry.cache.SharedLocatorCache;
 import com.fawry.utilities.Log;
 import io.appium.java_client.AppiumDriver;
 import org.openqa.selenium.*;
 import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.RemoteWebElement;
 import org.openqa.selenium.support.ui.WebDriverWait;
-import org.openqa.selenium.support.ui.ExpectedConditions;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class By extends org.openqa.selenium.By {
 
@@ -21,6 +30,39 @@ public class By extends org.openqa.selenium.By {
 
     // Cache for healed locators
     private static final Map<String, org.openqa.selenium.By> healedCache = new ConcurrentHashMap<>();
+
+    // Optional cache tier shared across JVMs/grid nodes, read after the local cache misses
+    private static SharedLocatorCache sharedCache;
+
+    // App build used to version shared cache entries
+    private static String appBuild = System.getProperty("selfhealing.appBuild", "unknown");
+
+    // Rewrite rules learned from previous heals, tried before asking the AI
+    private static LocatorRewriteRules rewriteRules = new LocatorRewriteRules(Paths.get("healing_rules.json"));
+
+    // Write-behind executor so publishing a heal never blocks the test thread
+    private static final ExecutorService sharedCacheWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shared-locator-cache-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // How long pending shared cache writes may delay JVM exit or a flush (in seconds)
+    private static final int SHARED_CACHE_FLUSH_TIMEOUT = 5;
+
+    static {
+        // Drain heals still queued for the shared cache when the test process exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            sharedCacheWriter.shutdown();
+            try {
+                if (!sharedCacheWriter.awaitTermination(SHARED_CACHE_FLUSH_TIMEOUT, TimeUnit.SECONDS)) {
+                    Log.warning("Shared cache writes still pending at shutdown were dropped.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "shared-locator-cache-shutdown"));
+    }
     
     // Default wait timeout (in seconds)
     private static final int DEFAULT_WAIT_TIMEOUT = 10;
@@ -28,6 +70,18 @@ public class By extends org.openqa.selenium.By {
     // Wait time for scrolling/swiping to complete (in milliseconds)
     private static final int SCROLL_WAIT_TIME_MS = 500;
 
+    // Lifetime of a reused WebElement handle on an unchanged screen (in milliseconds)
+    private static final long ELEMENT_HANDLE_TTL_MS = 3000;
+
+    // Resolved handles for repeated lookups of the same locator on the same screen
+    private static final ElementHandleCache elementHandles = new ElementHandleCache(ELEMENT_HANDLE_TTL_MS);
+
+    // Whether repeated lookups may return cached handles instead of querying the device
+    private static boolean elementHandleReuse = false;
+
+    // Number of nearest elements from the similarity index passed to the AI as hints
+    private static final int SIMILAR_CANDIDATES_LIMIT = 5;
+
     // ====== Constructor & Driver Setter ======
     private By(org.openqa.selenium.By by) {
         this.originalBy = by;
@@ -37,6 +91,44 @@ public class By extends org.openqa.selenium.By {
         driver = appiumDriver;
     }
 
+    public static void setSharedCache(SharedLocatorCache cache) {
+        sharedCache = cache;
+    }
+
+    public static void setAppBuild(String build) {
+        appBuild = build;
+    }
+
+    /**
+     * Blocks until every heal queued so far has been written to the shared cache (or the timeout elapses).
+     */
+    public static void flushSharedCache() {
+        try {
+            sharedCacheWriter.submit(() -> { }).get(SHARED_CACHE_FLUSH_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | java.util.concurrent.TimeoutException | RejectedExecutionException e) {
+            Log.warning("Failed to flush shared cache writes: " + e);
+        }
+    }
+
+    public static void setRewriteRulesFile(Path rulesFile) {
+        rewriteRules = new LocatorRewriteRules(rulesFile);
+    }
+
+    public static void setElementHandleReuse(boolean enabled) {
+        elementHandleReuse = enabled;
+        elementHandles.invalidate();
+    }
+
+    /**
+     * Drops all reused element handles. Stale handles already invalidate the cache when used;
+     * this is for callers that know the screen was re-created.
+     */
+    public static void invalidateElementHandles() {
+        elementHandles.invalidate();
+    }
+
     // ====== Supported Web Locator Factories ======
     public static By xpath(String xpath) { return new By(org.openqa.selenium.By.xpath(xpath)); }
     public static By id(String id) { return new By(org.openqa.selenium.By.id(id)); }
@@ -53,33 +145,64 @@ public class By extends org.openqa.selenium.By {
         String locatorKey = originalBy.toString();
         
         // First, wait for scrolling/swiping to complete
-        waitForScrollOrSwipeToComplete();
+        String currentPageSource = waitForScrollOrSwipeToComplete();
+
+        // Reuse handles resolved for this locator on the same screen
+        String handleContext = elementHandleReuse ? contextKey(context) : null;
+        String handleFingerprint = handleContext != null && currentPageSource != null
+                ? XmlGenerator.pageSourceFingerprint(currentPageSource) : null;
+        String handleKey = "element|" + handleContext + "|" + locatorKey;
+        if (handleFingerprint != null) {
+            List<WebElement> cachedHandles = elementHandles.get(handleFingerprint, handleKey);
+            if (cachedHandles != null) {
+                Log.info("♻️ Reusing element handle for locator: " + locatorKey);
+                return reuseHandles(cachedHandles, locatorKey, context).get(0);
+            }
+        }
         
         try {
-            // Check if we have a cached healed locator
-            if (healedCache.containsKey(locatorKey)) {
-                org.openqa.selenium.By cachedBy = healedCache.get(locatorKey);
-                return waitForElementVisibility(cachedBy, context);
+            // Check if we have a cached healed locator, otherwise try the original locator
+            org.openqa.selenium.By lookupBy = healedCache.getOrDefault(locatorKey, originalBy);
+            WebElement element = waitForElementVisibility(lookupBy, context);
+            if (handleFingerprint != null) {
+                elementHandles.put(handleFingerprint, handleKey, List.of(element));
             }
+            return element;
             
-            // Try with original locator, wait for visibility first
-            return waitForElementVisibility(originalBy, context);
-            
+        } catch (StaleElementReferenceException e) {
+            elementHandles.invalidate();
+            throw e;
         } catch (NoSuchElementException | TimeoutException | InvalidElementStateException e) {
             Log.info("⚠️ Element issue detected for locator: " + locatorKey);
-            Log.info("🧠 Triggering healing process...");
             
             // Wait for scrolling/swiping before healing
-            waitForScrollOrSwipeToComplete();
-            
+            String pageSource = waitForScrollOrSwipeToComplete();
+            String screenFingerprint = pageSource != null ? XmlGenerator.screenFingerprint(pageSource) : null;
+
+            List<WebElement> sharedElements = lookupSharedCache(locatorKey, screenFingerprint, context);
+            if (sharedElements != null) {
+                return sharedElements.get(0);
+            }
+
+            org.openqa.selenium.By rewrittenBy = applyRewriteRules(locatorKey, pageSource);
+            if (rewrittenBy != null) {
+                healedCache.put(locatorKey, rewrittenBy);
+                publishToSharedCache(locatorKey, screenFingerprint, rewrittenBy);
+                return waitForElementVisibility(rewrittenBy, context);
+            }
+
+            Log.info("🧠 Triggering healing process...");
             org.openqa.selenium.By healedBy = healLocator(locatorKey);
 
             if (healedBy != null) {
                 healedCache.put(locatorKey, healedBy);
+                publishToSharedCache(locatorKey, screenFingerprint, healedBy);
                 Log.info("✅ Healing successful. Cached healed locator: " + healedBy);
                 
-                // Wait for healed element to be visible
-                return waitForElementVisibility(healedBy, context);
+                // Wait for healed element to be visible, then generalise the fix for similar locators
+                WebElement healedElement = waitForElementVisibility(healedBy, context);
+                learnRewriteRules(locatorKey, healedBy);
+                return healedElement;
             }
 
             throw new NoSuchElementException("❌ Failed to heal locator: " + locatorKey, e);
@@ -91,51 +214,122 @@ public class By extends org.openqa.selenium.By {
         String locatorKey = originalBy.toString();
         
         // First, wait for scrolling/swiping to complete
-        waitForScrollOrSwipeToComplete();
+        String currentPageSource = waitForScrollOrSwipeToComplete();
+
+        // Reuse handles resolved for this locator on the same screen
+        String handleContext = elementHandleReuse ? contextKey(context) : null;
+        String handleFingerprint = handleContext != null && currentPageSource != null
+                ? XmlGenerator.pageSourceFingerprint(currentPageSource) : null;
+        String handleKey = "elements|" + handleContext + "|" + locatorKey;
+        if (handleFingerprint != null) {
+            List<WebElement> cachedHandles = elementHandles.get(handleFingerprint, handleKey);
+            if (cachedHandles != null) {
+                Log.info("♻️ Reusing element handle for locator: " + locatorKey);
+                return reuseHandles(cachedHandles, locatorKey, context);
+            }
+        }
         
         try {
-            // Check if we have a cached healed locator
-            if (healedCache.containsKey(locatorKey)) {
-                org.openqa.selenium.By cachedBy = healedCache.get(locatorKey);
-                return waitForElementsVisibility(cachedBy, context);
+            // Check if we have a cached healed locator, otherwise try the original locator
+            org.openqa.selenium.By lookupBy = healedCache.getOrDefault(locatorKey, originalBy);
+            List<WebElement> elements = waitForElementsVisibility(lookupBy, context);
+            if (handleFingerprint != null && !elements.isEmpty()) {
+                elementHandles.put(handleFingerprint, handleKey, elements);
             }
+            return elements;
             
-            // Try with original locator, wait for visibility first
-            return waitForElementsVisibility(originalBy, context);
-            
+        } catch (StaleElementReferenceException e) {
+            elementHandles.invalidate();
+            throw e;
         } catch (NoSuchElementException | TimeoutException | InvalidElementStateException e) {
             Log.info("⚠️ Elements issue detected for locator: " + locatorKey);
-            Log.info("🧠 Triggering healing process...");
             
             // Wait for scrolling/swiping before healing
-            waitForScrollOrSwipeToComplete();
-            
+            String pageSource = waitForScrollOrSwipeToComplete();
+            String screenFingerprint = pageSource != null ? XmlGenerator.screenFingerprint(pageSource) : null;
+
+            List<WebElement> sharedElements = lookupSharedCache(locatorKey, screenFingerprint, context);
+            if (sharedElements != null) {
+                return sharedElements;
+            }
+
+            org.openqa.selenium.By rewrittenBy = applyRewriteRules(locatorKey, pageSource);
+            if (rewrittenBy != null) {
+                healedCache.put(locatorKey, rewrittenBy);
+                publishToSharedCache(locatorKey, screenFingerprint, rewrittenBy);
+                return waitForElementsVisibility(rewrittenBy, context);
+            }
+
+            Log.info("🧠 Triggering healing process...");
             org.openqa.selenium.By healedBy = healLocator(locatorKey);
 
             if (healedBy != null) {
                 healedCache.put(locatorKey, healedBy);
+                publishToSharedCache(locatorKey, screenFingerprint, healedBy);
                 Log.info("✅ Healing successful for elements. Cached healed locator: " + healedBy);
                 
-                // Wait for healed elements to be visible
-                return waitForElementsVisibility(healedBy, context);
+                // Wait for healed elements to be visible, then generalise the fix for similar locators
+                List<WebElement> healedElements = waitForElementsVisibility(healedBy, context);
+                if (!healedElements.isEmpty()) {
+                    learnRewriteRules(locatorKey, healedBy);
+                }
+                return healedElements;
             }
 
             throw new NoSuchElementException("❌ Failed to heal elements for locator: " + locatorKey, e);
         }
     }
 
+    // ====== Element Handle Reuse ======
+
+    /**
+     * Identifies a search context by its remote element id or driver session, or returns null
+     * when the context cannot be identified reliably (handles are then not reused).
+     */
+    private static String contextKey(SearchContext context) {
+        if (context instanceof WrapsElement) {
+            context = ((WrapsElement) context).getWrappedElement();
+        }
+        if (context instanceof RemoteWebElement) {
+            return "element:" + ((RemoteWebElement) context).getId();
+        }
+        if (context instanceof RemoteWebDriver) {
+            return "session:" + ((RemoteWebDriver) context).getSessionId();
+        }
+        return null;
+    }
+
+    /**
+     * Wraps cached handles so that a stale one invalidates the cache and is resolved again on use.
+     * The page source fingerprint already proved the screen is unchanged, so no up-front check is made.
+     */
+    private List<WebElement> reuseHandles(List<WebElement> handles, String locatorKey, SearchContext context) {
+        org.openqa.selenium.By lookupBy = healedCache.getOrDefault(locatorKey, originalBy);
+        List<WebElement> reused = new ArrayList<>(handles.size());
+        for (int i = 0; i < handles.size(); i++) {
+            int index = i;
+            reused.add(new ReusedWebElement(handles.get(i), elementHandles::invalidate, () -> {
+                List<WebElement> fresh = lookupBy.findElements(context);
+                return index < fresh.size() ? fresh.get(index) : null;
+            }));
+        }
+        return reused;
+    }
+
     // ====== Wait Utilities ======
     
     /**
      * Waits for scrolling or swiping animations to complete by checking if page source stabilizes.
+     * Returns the last page source read, or null if it could not be read.
      */
-    private void waitForScrollOrSwipeToComplete() {
+    private String waitForScrollOrSwipeToComplete() {
         if (driver == null) {
-            return;
+            return null;
         }
         
+        String previousPageSource = null;
         try {
-            String previousPageSource = driver.getPageSource();
+            previousPageSource = driver.getPageSource();
             Thread.sleep(SCROLL_WAIT_TIME_MS);
             
             int maxAttempts = 5;
@@ -145,7 +339,7 @@ public class By extends org.openqa.selenium.By {
                 if (currentPageSource.equals(previousPageSource)) {
                     // Page source is stable, scrolling/swiping is complete
                     Log.info("✅ Scrolling/swiping completed - page source is stable");
-                    return;
+                    return currentPageSource;
                 }
                 previousPageSource = currentPageSource;
                 Thread.sleep(SCROLL_WAIT_TIME_MS);
@@ -156,6 +350,7 @@ public class By extends org.openqa.selenium.By {
             Log.info("⚠️ Error checking scroll/swipe completion: " + e.getMessage());
             // Continue anyway - don't block execution
         }
+        return previousPageSource;
     }
     
     /**
@@ -165,8 +360,12 @@ public class By extends org.openqa.selenium.By {
         // If context is WebDriver/AppiumDriver, use WebDriverWait
         if (context instanceof WebDriver) {
             try {
+                // Poll with findElements so that the call proving presence also returns the element
                 WebDriverWait wait = new WebDriverWait((WebDriver) context, Duration.ofSeconds(DEFAULT_WAIT_TIMEOUT));
-                return wait.until(ExpectedConditions.presenceOfElementLocated(by));
+                return wait.until(d -> {
+                    List<WebElement> found = by.findElements(d);
+                    return found.isEmpty() ? null : found.get(0);
+                });
             } catch (TimeoutException e) {
                 // If wait times out, try direct findElement as fallback
                 Log.info("⚠️ Wait for visibility timed out, trying direct findElement");
@@ -209,10 +408,12 @@ public class By extends org.openqa.selenium.By {
         // If context is WebDriver/AppiumDriver, use WebDriverWait
         if (context instanceof WebDriver) {
             try {
+                // Return the same list that proved presence instead of querying the device again
                 WebDriverWait wait = new WebDriverWait((WebDriver) context, Duration.ofSeconds(DEFAULT_WAIT_TIMEOUT));
-                wait.until(ExpectedConditions.presenceOfElementLocated(by));
-                // After waiting for at least one element, return all found elements
-                return by.findElements(context);
+                return wait.until(d -> {
+                    List<WebElement> found = by.findElements(d);
+                    return found.isEmpty() ? null : found;
+                });
             } catch (TimeoutException e) {
                 // If wait times out, try direct findElements as fallback
                 Log.info("⚠️ Wait for visibility timed out, trying direct findElements");
@@ -242,6 +443,86 @@ public class By extends org.openqa.selenium.By {
         return by.findElements(context);
     }
     
+    // ====== Shared Cache ======
+
+    /**
+     * Looks up a locator healed by another node for the same app build and screen.
+     * The entry is only used (and promoted to the local cache) if it matches on the current screen;
+     * the elements found by that check are returned so the caller needs no second lookup.
+     */
+    private List<WebElement> lookupSharedCache(String locatorKey, String screenFingerprint, SearchContext context) {
+        if (sharedCache == null || screenFingerprint == null) {
+            return null;
+        }
+        try {
+            String healedXpath = sharedCache.get(appBuild, screenFingerprint, locatorKey);
+            if (healedXpath == null) {
+                return null;
+            }
+            org.openqa.selenium.By sharedBy = org.openqa.selenium.By.xpath(healedXpath);
+            List<WebElement> sharedElements = sharedBy.findElements(context);
+            if (sharedElements.isEmpty()) {
+                Log.info("⚠️ Shared cache entry does not match current screen: " + healedXpath);
+                return null;
+            }
+            healedCache.put(locatorKey, sharedBy);
+            Log.info("🌐 Reusing locator healed on another node: " + healedXpath);
+            return sharedElements;
+        } catch (Exception e) {
+            Log.error("Shared cache lookup failed for locator: " + locatorKey, e);
+            return null;
+        }
+    }
+
+    private void publishToSharedCache(String locatorKey, String screenFingerprint, org.openqa.selenium.By healedBy) {
+        if (sharedCache == null || screenFingerprint == null) {
+            return;
+        }
+        String healedXpath = healedBy.toString().replace("By.xpath: ", "");
+        String build = appBuild;
+        SharedLocatorCache cache = sharedCache;
+        try {
+            sharedCacheWriter.submit(() -> {
+                try {
+                    cache.put(build, screenFingerprint, locatorKey, healedXpath);
+                } catch (Exception e) {
+                    Log.error("Failed to publish healed locator to shared cache: " + locatorKey, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.warning("Shared cache writer is shut down, healed locator not published: " + locatorKey);
+        }
+    }
+
+    // ====== Rewrite Rules ======
+
+    /**
+     * Tries the learned rewrite rules on a failing locator, verified against the current page source.
+     */
+    private org.openqa.selenium.By applyRewriteRules(String locatorKey, String pageSource) {
+        if (pageSource == null) {
+            return null;
+        }
+        try {
+            String rewrittenXpath = rewriteRules.rewrite(locatorKey, XmlGenerator.parsePageSource(pageSource));
+            if (rewrittenXpath != null) {
+                Log.info("✅ Healed without AI using rewrite rules: " + rewrittenXpath);
+                return org.openqa.selenium.By.xpath(rewrittenXpath);
+            }
+        } catch (Exception e) {
+            Log.error("Rewrite rules failed for locator: " + locatorKey, e);
+        }
+        return null;
+    }
+
+    private void learnRewriteRules(String locatorKey, org.openqa.selenium.By healedBy) {
+        try {
+            rewriteRules.learn(locatorKey, healedBy.toString().replace("By.xpath: ", ""));
+        } catch (Exception e) {
+            Log.error("Failed to learn rewrite rules from locator: " + locatorKey, e);
+        }
+    }
+
     // ====== Healing Logic ======
     private org.openqa.selenium.By healLocator(String rawLocator) {
         try {
@@ -270,8 +551,13 @@ public class By extends org.openqa.selenium.By {
             xmlGenerator.clearXmlSnapshotsDirectory();
             xmlGenerator.generatePageXML();
 
+            // Narrow down the closest elements without scanning the whole tree
+            SimilarityIndex similarityIndex = xmlGenerator.getSimilarityIndex();
+            List<SimilarityIndex.Candidate> candidates = similarityIndex.findNearest(cleanedLocator, SIMILAR_CANDIDATES_LIMIT);
+            Log.info("🔎 Closest elements (" + candidates.size() + " of " + similarityIndex.size() + "): " + candidates);
+
             // Send locator to AI for analysis and repair
-            List<String> healedLocators = new AIIntegrationService().autoAnalyzeAndFix(List.of(cleanedLocator));
+            List<String> healedLocators = new AIIntegrationService().autoAnalyzeAndFix(List.of(cleanedLocator), candidates);
 
             if (healedLocators != null && !healedLocators.isEmpty()) {
                 String healedXpath = healedLocators.get(0).trim();
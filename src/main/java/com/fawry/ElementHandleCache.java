@@ -0,0 +1,63 @@
+package com.fawry;
+
+import org.openqa.selenium.WebElement;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Short-lived cache of resolved WebElement handles for the current screen.
+ * All handles are dropped as soon as the page source fingerprint changes, when they expire,
+ * or when a reused handle turns out to be stale ({@link #invalidate()}). Stored lists are
+ * immutable copies, so callers cannot corrupt them.
+ */
+class ElementHandleCache {
+    private final long ttlMillis;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private String screenFingerprint;
+
+    ElementHandleCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    synchronized List<WebElement> get(String fingerprint, String key) {
+        if (!fingerprint.equals(screenFingerprint)) {
+            entries.clear();
+            screenFingerprint = fingerprint;
+            return null;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.resolvedAt > ttlMillis) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.elements;
+    }
+
+    synchronized void put(String fingerprint, String key, List<WebElement> elements) {
+        if (!fingerprint.equals(screenFingerprint)) {
+            entries.clear();
+            screenFingerprint = fingerprint;
+        }
+        entries.put(key, new Entry(List.copyOf(elements), System.currentTimeMillis()));
+    }
+
+    synchronized void invalidate() {
+        entries.clear();
+        screenFingerprint = null;
+    }
+
+    private static class Entry {
+        private final List<WebElement> elements;
+        private final long resolvedAt;
+
+        Entry(List<WebElement> elements, long resolvedAt) {
+            this.elements = elements;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.fawry;
+
+import com.fawry.utilities.Log;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrite rules generalised from successful heals (original -> healed pairs).
+ * Systematic breakages such as a resource-id package prefix change, a renamed widget class or
+ * an @name -> @label switch are learned once and then applied to other failing locators,
+ * verified against the page snapshot, before falling back to the AI.
+ */
+public class LocatorRewriteRules {
+    private static final Pattern RESOURCE_ID_PATTERN = Pattern.compile("([A-Za-z][\\w.]*):id/([\\w.-]+)");
+    private static final Pattern ATTRIBUTE_PATTERN = Pattern.compile("@([\\w-]+)\\s*=\\s*['\"]([^'\"]*)['\"]");
+    private static final Pattern CLASS_PATTERN = Pattern.compile("(android\\.[\\w.]+|XCUIElementType\\w+)");
+
+    // A class or attribute change seen in a single heal may just be the AI picking another element,
+    // so those rules are only applied once a second heal (or a verified rewrite) confirms them.
+    // A prefix rule needs no confirmation: it is only learned when the id entry names match exactly.
+    private static final int MIN_CONFIRMED_HITS = 2;
+
+    public enum Kind { PREFIX, ATTRIBUTE, CLASS }
+
+    private final Path rulesFile;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Rule> rules = new ArrayList<>();
+
+    public LocatorRewriteRules(Path rulesFile) {
+        this.rulesFile = rulesFile;
+        load();
+    }
+
+    public synchronized List<Rule> getRules() {
+        return new ArrayList<>(rules);
+    }
+
+    /**
+     * Derives rules from a successful heal and persists any new ones. The pair is only learned from
+     * if applying the derived rules to the original locator reproduces the healed one; a heal that
+     * restructured the path or picked an unrelated element teaches nothing.
+     */
+    public synchronized void learn(String rawLocator, String healedXpath) {
+        String original = toXpath(rawLocator, healedXpath.contains("XCUIElementType"));
+        if (original == null) {
+            return;
+        }
+
+        List<Rule> learned = new ArrayList<>();
+
+        Map<String, String> healedPackages = new HashMap<>();
+        Matcher healedId = RESOURCE_ID_PATTERN.matcher(healedXpath);
+        while (healedId.find()) {
+            healedPackages.put(healedId.group(2), healedId.group(1));
+        }
+        Matcher originalId = RESOURCE_ID_PATTERN.matcher(original);
+        while (originalId.find()) {
+            String healedPackage = healedPackages.get(originalId.group(2));
+            if (healedPackage != null && !healedPackage.equals(originalId.group(1))) {
+                addIfAbsent(learned, new Rule(Kind.PREFIX, originalId.group(1) + ":id/", healedPackage + ":id/"));
+            }
+        }
+
+        Map<String, String> healedAttributes = attributesByValue(healedXpath);
+        Matcher originalAttribute = ATTRIBUTE_PATTERN.matcher(original);
+        while (originalAttribute.find()) {
+            String healedName = healedAttributes.get(originalAttribute.group(2));
+            if (healedName != null && !healedName.equals(originalAttribute.group(1))) {
+                addIfAbsent(learned, new Rule(Kind.ATTRIBUTE, originalAttribute.group(1), healedName));
+            }
+        }
+
+        // Classes are paired step by step; paths of different shape say nothing about a rename
+        List<String> originalClasses = classes(original);
+        List<String> healedClasses = classes(healedXpath);
+        if (originalClasses.size() == healedClasses.size()) {
+            for (int i = 0; i < originalClasses.size(); i++) {
+                if (!originalClasses.get(i).equals(healedClasses.get(i))) {
+                    addIfAbsent(learned, new Rule(Kind.CLASS, originalClasses.get(i), healedClasses.get(i)));
+                }
+            }
+        }
+
+        if (learned.isEmpty()) {
+            return;
+        }
+        String rewritten = original;
+        for (Rule rule : learned) {
+            rewritten = rule.apply(rewritten);
+        }
+        if (!reproduces(rewritten, healedXpath)) {
+            Log.info("📐 Heal does not generalise into rewrite rules: " + original + " -> " + healedXpath);
+            return;
+        }
+
+        for (Rule rule : learned) {
+            Rule existing = find(rule);
+            if (existing != null) {
+                existing.hits++;
+            } else {
+                rules.add(rule);
+                Log.info("📐 Learned locator rewrite rule: " + rule);
+            }
+        }
+        save();
+    }
+
+    /**
+     * Applies the learned rules to a failing locator and returns the first rewritten XPath
+     * that matches at least one element in the snapshot, or null if none does.
+     */
+    public synchronized String rewrite(String rawLocator, Document snapshot) {
+        String original = toXpath(rawLocator, isIos(snapshot));
+        if (original == null || rules.isEmpty()) {
+            return null;
+        }
+
+        List<Rule> ordered = new ArrayList<>();
+        for (Rule rule : rules) {
+            if (rule.isTrusted()) {
+                ordered.add(rule);
+            }
+        }
+        ordered.sort(Comparator.comparingInt((Rule rule) -> rule.hits).reversed());
+
+        // Try the most confirmed rules one by one, then all applicable ones together
+        // (a family may have broken in several ways at once)
+        Map<String, List<Rule>> attempts = new LinkedHashMap<>();
+        List<Rule> applicable = new ArrayList<>();
+        String combined = original;
+        for (Rule rule : ordered) {
+            String single = rule.apply(original);
+            if (!single.equals(original)) {
+                attempts.putIfAbsent(single, List.of(rule));
+            }
+            String rewritten = rule.apply(combined);
+            if (!rewritten.equals(combined)) {
+                applicable.add(rule);
+                combined = rewritten;
+            }
+        }
+        if (applicable.isEmpty()) {
+            return null;
+        }
+        attempts.putIfAbsent(combined, applicable);
+
+        for (Map.Entry<String, List<Rule>> attempt : attempts.entrySet()) {
+            if (matchesSnapshot(attempt.getKey(), snapshot)) {
+                attempt.getValue().forEach(rule -> rule.hits++);
+                save();
+                Log.info("📐 Rewrite rules " + attempt.getValue() + " healed locator: " + attempt.getKey());
+                return attempt.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Normalises a raw locator (e.g. "By.id: pkg:id/name") to the XPath form rules operate on.
+     * By.id is the resource-id on Android and the accessibility id (@name) on iOS.
+     * CSS selectors, link texts and tag names are not rewritten.
+     */
+    private static String toXpath(String rawLocator, boolean ios) {
+        if (rawLocator.startsWith("By.xpath: ")) {
+            return rawLocator.substring("By.xpath: ".length()).trim();
+        }
+        if (rawLocator.startsWith("By.id: ")) {
+            String idAttribute = ios ? "name" : "resource-id";
+            return "//*[@" + idAttribute + "='" + rawLocator.substring("By.id: ".length()).trim() + "']";
+        }
+        if (rawLocator.startsWith("By.name: ")) {
+            return "//*[@name='" + rawLocator.substring("By.name: ".length()).trim() + "']";
+        }
+        if (rawLocator.startsWith("By.className: ")) {
+            return "//" + rawLocator.substring("By.className: ".length()).trim();
+        }
+        if (rawLocator.startsWith("//")) {
+            return rawLocator.trim();
+        }
+        return null;
+    }
+
+    /**
+     * XCUITest page sources have an AppiumAUT root wrapping XCUIElementType* elements.
+     */
+    private static boolean isIos(Document snapshot) {
+        Element root = snapshot.getDocumentElement();
+        if (root == null) {
+            return false;
+        }
+        if (root.getTagName().equals("AppiumAUT") || root.getTagName().startsWith("XCUIElementType")) {
+            return true;
+        }
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                return ((Element) child).getTagName().startsWith("XCUIElementType");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if the rewritten locator says nothing the healed one contradicts: the same class path
+     * (or no classes at all, e.g. //*) and only attribute predicates the healed locator also has.
+     */
+    private static boolean reproduces(String rewritten, String healedXpath) {
+        if (normalize(rewritten).equals(normalize(healedXpath))) {
+            return true;
+        }
+        List<String> rewrittenClasses = classes(rewritten);
+        if (!rewrittenClasses.isEmpty() && !rewrittenClasses.equals(classes(healedXpath))) {
+            return false;
+        }
+        Set<String> rewrittenPredicates = predicates(rewritten);
+        return !rewrittenPredicates.isEmpty() && predicates(healedXpath).containsAll(rewrittenPredicates);
+    }
+
+    private static String normalize(String xpath) {
+        return xpath.replace('"', '\'').replaceAll("\\s+", "");
+    }
+
+    private static List<String> classes(String xpath) {
+        List<String> classes = new ArrayList<>();
+        Matcher matcher = CLASS_PATTERN.matcher(xpath);
+        while (matcher.find()) {
+            classes.add(matcher.group(1));
+        }
+        return classes;
+    }
+
+    private static Set<String> predicates(String xpath) {
+        Set<String> predicates = new HashSet<>();
+        Matcher matcher = ATTRIBUTE_PATTERN.matcher(xpath);
+        while (matcher.find()) {
+            predicates.add(matcher.group(1) + "=" + matcher.group(2));
+        }
+        return predicates;
+    }
+
+    private static void addIfAbsent(List<Rule> learned, Rule rule) {
+        for (Rule existing : learned) {
+            if (existing.kind == rule.kind && existing.from.equals(rule.from) && existing.to.equals(rule.to)) {
+                return;
+            }
+        }
+        learned.add(rule);
+    }
+
+    private static Map<String, String> attributesByValue(String xpath) {
+        Map<String, String> attributes = new HashMap<>();
+        Matcher matcher = ATTRIBUTE_PATTERN.matcher(xpath);
+        while (matcher.find()) {
+            attributes.putIfAbsent(matcher.group(2), matcher.group(1));
+        }
+        return attributes;
+    }
+
+    private static boolean matchesSnapshot(String xpath, Document snapshot) {
+        try {
+            NodeList nodes = (NodeList) XPathFactory.newInstance().newXPath()
+                    .evaluate(xpath, snapshot, XPathConstants.NODESET);
+            return nodes.getLength() > 0;
+        } catch (XPathExpressionException e) {
+            Log.info("⚠️ Rewritten locator is not a valid XPath: " + xpath);
+            return false;
+        }
+    }
+
+    private Rule find(Rule rule) {
+        for (Rule existing : rules) {
+            if (existing.kind == rule.kind && existing.from.equals(rule.from) && existing.to.equals(rule.to)) {
+                return existing;
+            }
+        }
+        return null;
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(rulesFile)) {
+            return;
+        }
+        try {
+            for (JsonNode node : mapper.readTree(rulesFile.toFile())) {
+                Rule rule = new Rule(Kind.valueOf(node.path("kind").asText()),
+                        node.path("from").asText(), node.path("to").asText());
+                rule.hits = node.path("hits").asInt(1);
+                rules.add(rule);
+            }
+            Log.info("Loaded " + rules.size() + " locator rewrite rules from: " + rulesFile.toAbsolutePath());
+        } catch (IOException | IllegalArgumentException e) {
+            Log.error("Failed to load locator rewrite rules: " + rulesFile, e);
+            rules.clear();
+            // Keep the unreadable file aside instead of letting the next save overwrite it
+            try {
+                Files.move(rulesFile, rulesFile.resolveSibling(rulesFile.getFileName() + ".corrupt"),
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException moveError) {
+                Log.error("Failed to move aside unreadable rules file: " + rulesFile, moveError);
+            }
+        }
+    }
+
+    private void save() {
+        ArrayNode array = mapper.createArrayNode();
+        for (Rule rule : rules) {
+            ObjectNode node = array.addObject();
+            node.put("kind", rule.kind.name());
+            node.put("from", rule.from);
+            node.put("to", rule.to);
+            node.put("hits", rule.hits);
+        }
+        try {
+            Path directory = rulesFile.toAbsolutePath().getParent();
+            Path temp = Files.createTempFile(directory, "rules", ".tmp");
+            Files.writeString(temp, mapper.writerWithDefaultPrettyPrinter().writeValueAsString(array));
+            try {
+                Files.move(temp, rulesFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, rulesFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Log.error("Failed to save locator rewrite rules: " + rulesFile, e);
+        }
+    }
+
+    public static class Rule {
+        private final Kind kind;
+        private final String from;
+        private final String to;
+        private int hits = 1;
+
+        Rule(Kind kind, String from, String to) {
+            this.kind = kind;
+            this.from = from;
+            this.to = to;
+        }
+
+        public Kind getKind() { return kind; }
+        public String getFrom() { return from; }
+        public String getTo() { return to; }
+        public int getHits() { return hits; }
+
+        boolean isTrusted() {
+            return kind == Kind.PREFIX || hits >= MIN_CONFIRMED_HITS;
+        }
+
+        String apply(String xpath) {
+            switch (kind) {
+                case PREFIX:
+                    return xpath.replace(from, to);
+                case ATTRIBUTE:
+                    return xpath.replaceAll("@" + Pattern.quote(from) + "(\\s*=)", Matcher.quoteReplacement("@" + to) + "$1");
+                case CLASS:
+                    return xpath.replaceAll("(?<![\\w.])" + Pattern.quote(from) + "(?![\\w.])", Matcher.quoteReplacement(to));
+                default:
+                    return xpath;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return kind + "(" + from + " -> " + to + ")";
+        }
+    }
+}
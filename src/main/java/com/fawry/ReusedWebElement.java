@@ -0,0 +1,136 @@
+package com.fawry;
+
+import com.fawry.utilities.Log;
+import org.openqa.selenium.*;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Element handle handed out from the handle cache. If the underlying handle turns out to be stale
+ * when it is used, the cache is invalidated and the element is resolved again once, so reuse never
+ * costs an up-front validation round trip.
+ */
+class ReusedWebElement implements WebElement, WrapsElement {
+    private final Runnable onStale;
+    private final Supplier<WebElement> resolver;
+    private WebElement delegate;
+    private boolean resolvedAgain;
+
+    ReusedWebElement(WebElement delegate, Runnable onStale, Supplier<WebElement> resolver) {
+        this.delegate = delegate;
+        this.onStale = onStale;
+        this.resolver = resolver;
+    }
+
+    private synchronized <T> T call(Function<WebElement, T> action) {
+        try {
+            return action.apply(delegate);
+        } catch (StaleElementReferenceException e) {
+            if (resolvedAgain) {
+                throw e;
+            }
+            resolvedAgain = true;
+            onStale.run();
+            Log.info("⚠️ Reused element handle is stale, resolving it again");
+            WebElement fresh = resolver.get();
+            if (fresh == null) {
+                throw e;
+            }
+            delegate = fresh;
+            return action.apply(delegate);
+        }
+    }
+
+    private void run(Consumer<WebElement> action) {
+        call(element -> {
+            action.accept(element);
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized WebElement getWrappedElement() { return delegate; }
+
+    @Override
+    public void click() { run(WebElement::click); }
+
+    @Override
+    public void submit() { run(WebElement::submit); }
+
+    @Override
+    public void sendKeys(CharSequence... keysToSend) { run(element -> element.sendKeys(keysToSend)); }
+
+    @Override
+    public void clear() { run(WebElement::clear); }
+
+    @Override
+    public String getTagName() { return call(WebElement::getTagName); }
+
+    @Override
+    public String getDomProperty(String name) { return call(element -> element.getDomProperty(name)); }
+
+    @Override
+    public String getDomAttribute(String name) { return call(element -> element.getDomAttribute(name)); }
+
+    @Override
+    public String getAttribute(String name) { return call(element -> element.getAttribute(name)); }
+
+    @Override
+    public String getAriaRole() { return call(WebElement::getAriaRole); }
+
+    @Override
+    public String getAccessibleName() { return call(WebElement::getAccessibleName); }
+
+    @Override
+    public boolean isSelected() { return call(WebElement::isSelected); }
+
+    @Override
+    public boolean isEnabled() { return call(WebElement::isEnabled); }
+
+    @Override
+    public String getText() { return call(WebElement::getText); }
+
+    @Override
+    public List<WebElement> findElements(org.openqa.selenium.By by) { return call(element -> element.findElements(by)); }
+
+    @Override
+    public WebElement findElement(org.openqa.selenium.By by) { return call(element -> element.findElement(by)); }
+
+    @Override
+    public SearchContext getShadowRoot() { return call(WebElement::getShadowRoot); }
+
+    @Override
+    public boolean isDisplayed() { return call(WebElement::isDisplayed); }
+
+    @Override
+    public Point getLocation() { return call(WebElement::getLocation); }
+
+    @Override
+    public Dimension getSize() { return call(WebElement::getSize); }
+
+    @Override
+    public Rectangle getRect() { return call(WebElement::getRect); }
+
+    @Override
+    public String getCssValue(String propertyName) { return call(element -> element.getCssValue(propertyName)); }
+
+    @Override
+    public <X> X getScreenshotAs(OutputType<X> target) throws WebDriverException {
+        return call(element -> element.getScreenshotAs(target));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof WebElement && getWrappedElement().equals(
+                other instanceof WrapsElement ? ((WrapsElement) other).getWrappedElement() : other);
+    }
+
+    @Override
+    public int hashCode() { return getWrappedElement().hashCode(); }
+
+    @Override
+    public String toString() { return "Reused(" + getWrappedElement() + ")"; }
+}
@@ -0,0 +1,301 @@
+package com.fawry;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.Document;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Approximate nearest-element search over an XML page snapshot.
+ * Every element is indexed under a few short views (its tag with one attribute value each, and its
+ * tag with its own and its parent's id), since a locator usually names one attribute. Each view is
+ * reduced to character n-grams, summarised as a MinHash signature and bucketed with LSH banding,
+ * so the closest elements to a damaged locator are found without comparing it against the whole tree.
+ * Tokens shared by nearly every element (package names, attribute names, the android.widget and
+ * XCUIElementType prefixes) are stripped first; otherwise every element would share every bucket.
+ */
+public class SimilarityIndex {
+    private static final int NGRAM_SIZE = 3;
+    // 16 bands of 4 rows put the LSH threshold at about (1/16)^(1/4) = 0.5 similarity
+    private static final int BANDS = 16;
+    private static final int ROWS_PER_BAND = 4;
+    private static final int NUM_HASHES = BANDS * ROWS_PER_BAND;
+
+    // Upper bound on elements scored per query; larger buckets carry no signal and are skipped
+    static final int MAX_CANDIDATES = 256;
+    private static final long SEED = 0x5EEDL;
+
+    // Layout attributes change on every render and only add noise to the signature
+    private static final Set<String> IGNORED_ATTRIBUTES = Set.of(
+            "bounds", "x", "y", "width", "height", "index", "focused", "selected", "checked", "package");
+
+    private static final Pattern LOCATOR_PREFIX = Pattern.compile("By\\.\\w+:?");
+    private static final Pattern ATTRIBUTE_NAME = Pattern.compile("@[\\w-]+\\s*=");
+    private static final Pattern ID_PACKAGE = Pattern.compile("[\\w.]+:id/");
+    private static final Pattern QUALIFIED_CLASS = Pattern.compile("\\b(?:[a-z]\\w*\\.)+([A-Z]\\w*)");
+    private static final Pattern IOS_CLASS = Pattern.compile("\\bXCUIElementType(\\w+)");
+    private static final Pattern LOCATOR_SYNTAX = Pattern.compile("[\\[\\]/@='\"()|,]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final List<Element> elements = new ArrayList<>();
+    private final List<String> descriptions = new ArrayList<>();
+    private final List<List<int[]>> signatures = new ArrayList<>();
+    private final Map<Long, List<Integer>> buckets = new HashMap<>();
+
+    public SimilarityIndex(Document document) {
+        // Repeated list rows often share views; hash each distinct view once
+        Map<String, int[]> signatureByView = new HashMap<>();
+        NodeList allElements = document.getElementsByTagName("*");
+        for (int i = 0; i < allElements.getLength(); ++i) {
+            Element element = (Element) allElements.item(i);
+            int position = elements.size();
+            List<int[]> elementSignatures = new ArrayList<>();
+            for (String view : views(element)) {
+                int[] signature = signatureByView.computeIfAbsent(view, SimilarityIndex::signature);
+                elementSignatures.add(signature);
+                for (int band = 0; band < BANDS; band++) {
+                    List<Integer> bucket = buckets.computeIfAbsent(bucketKey(signature, band), k -> new ArrayList<>());
+                    if (bucket.isEmpty() || bucket.get(bucket.size() - 1) != position) {
+                        bucket.add(position);
+                    }
+                }
+            }
+
+            elements.add(element);
+            descriptions.add(describe(element));
+            signatures.add(elementSignatures);
+        }
+    }
+
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * Returns up to {@code k} elements sharing at least one LSH bucket with the locator,
+     * ordered by estimated Jaccard similarity (highest first).
+     */
+    public List<Candidate> findNearest(String locator, int k) {
+        int[] query = signature(tokenize(locator));
+
+        List<ScoredPosition> scored = new ArrayList<>();
+        for (int position : candidates(query)) {
+            double best = 0;
+            for (int[] signature : signatures.get(position)) {
+                best = Math.max(best, estimateSimilarity(query, signature));
+            }
+            scored.add(new ScoredPosition(position, best));
+        }
+        scored.sort((first, second) -> Double.compare(second.score, first.score));
+
+        // Indexed XPaths are only built for the winners; identical ones would be indistinguishable hints
+        Map<String, Candidate> nearest = new LinkedHashMap<>();
+        for (ScoredPosition candidate : scored) {
+            if (nearest.size() >= k) {
+                break;
+            }
+            String xpath = XmlGenerator.generateIndexedXPath(elements.get(candidate.position));
+            nearest.putIfAbsent(xpath, new Candidate(xpath, descriptions.get(candidate.position), candidate.score));
+        }
+        return new ArrayList<>(nearest.values());
+    }
+
+    int countCandidates(String locator) {
+        return candidates(signature(tokenize(locator))).size();
+    }
+
+    /**
+     * Collects elements sharing a bucket with the query, most shared bands first, capped at MAX_CANDIDATES.
+     * Buckets larger than the cap are skipped unless nothing else matched.
+     */
+    private List<Integer> candidates(int[] query) {
+        Map<Integer, Integer> sharedBands = new HashMap<>();
+        List<Integer> smallestOversized = null;
+        for (int band = 0; band < BANDS; band++) {
+            List<Integer> bucket = buckets.get(bucketKey(query, band));
+            if (bucket == null) {
+                continue;
+            }
+            if (bucket.size() > MAX_CANDIDATES) {
+                if (smallestOversized == null || bucket.size() < smallestOversized.size()) {
+                    smallestOversized = bucket;
+                }
+                continue;
+            }
+            for (int position : bucket) {
+                sharedBands.merge(position, 1, Integer::sum);
+            }
+        }
+        if (sharedBands.isEmpty() && smallestOversized != null) {
+            return new ArrayList<>(smallestOversized.subList(0, MAX_CANDIDATES));
+        }
+
+        List<Integer> positions = new ArrayList<>(sharedBands.keySet());
+        if (positions.size() > MAX_CANDIDATES) {
+            positions.sort((first, second) -> sharedBands.get(second) - sharedBands.get(first));
+            positions = new ArrayList<>(positions.subList(0, MAX_CANDIDATES));
+        }
+        return positions;
+    }
+
+    /**
+     * The texts an element is indexed under: its tag with each meaningful attribute value,
+     * and its tag with its own and its parent's resource-id (the part of the tree path that varies).
+     */
+    private static Set<String> views(Element element) {
+        String tagName = element.getTagName();
+        Set<String> views = new LinkedHashSet<>();
+        for (String value : attributeValues(element)) {
+            views.add(tokenize(tagName + " " + value));
+        }
+        String id = element.getAttribute("resource-id");
+        String parentId = element.getParentNode() instanceof Element
+                ? ((Element) element.getParentNode()).getAttribute("resource-id") : "";
+        if (!id.isEmpty() && !parentId.isEmpty()) {
+            views.add(tokenize(tagName + " " + id + " " + parentId));
+        }
+        if (views.isEmpty()) {
+            views.add(tokenize(tagName));
+        }
+        return views;
+    }
+
+    /**
+     * Human-readable summary sent along with a candidate: tag, attribute values and parent id.
+     */
+    private static String describe(Element element) {
+        StringBuilder text = new StringBuilder(element.getTagName());
+        for (String value : attributeValues(element)) {
+            text.append(' ').append(value);
+        }
+        if (element.getParentNode() instanceof Element) {
+            String parentId = ((Element) element.getParentNode()).getAttribute("resource-id");
+            if (!parentId.isEmpty()) {
+                text.append(' ').append(parentId);
+            }
+        }
+        return tokenize(text.toString());
+    }
+
+    private static List<String> attributeValues(Element element) {
+        String tagName = element.getTagName();
+        NamedNodeMap attributes = element.getAttributes();
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            String name = attribute.getNodeName();
+            String value = attribute.getNodeValue();
+            if (!IGNORED_ATTRIBUTES.contains(name) && value != null && !value.isEmpty()
+                    && !"true".equals(value) && !"false".equals(value)
+                    && !(("class".equals(name) || "type".equals(name)) && value.equals(tagName))) {
+                values.add(value);
+            }
+        }
+        Collections.sort(values);
+        return values;
+    }
+
+    /**
+     * Strips locator syntax (By.xxx prefixes, attribute names, slashes, brackets, quotes), id package
+     * prefixes and class packages so that locators and element descriptions are compared on the same tokens.
+     */
+    static String tokenize(String text) {
+        String stripped = LOCATOR_PREFIX.matcher(text).replaceAll(" ");
+        stripped = ATTRIBUTE_NAME.matcher(stripped).replaceAll(" ");
+        stripped = ID_PACKAGE.matcher(stripped).replaceAll(" ");
+        stripped = QUALIFIED_CLASS.matcher(stripped).replaceAll("$1");
+        stripped = IOS_CLASS.matcher(stripped).replaceAll("$1");
+        stripped = LOCATOR_SYNTAX.matcher(stripped).replaceAll(" ");
+        return WHITESPACE.matcher(stripped).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * MinHash signature of the text's character n-grams. The NUM_HASHES hash functions are
+     * derived from two fully mixed base hashes per n-gram (h1 + i * h2) with one cheap mixing step each.
+     */
+    private static int[] signature(String text) {
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        String padded = " " + text + " ";
+        for (int i = 0; i + NGRAM_SIZE <= padded.length(); i++) {
+            int shingle = 0;
+            for (int c = i; c < i + NGRAM_SIZE; c++) {
+                shingle = 31 * shingle + padded.charAt(c);
+            }
+            long h1 = mix(shingle ^ SEED);
+            long h2 = mix(h1) | 1;
+            for (int h = 0; h < NUM_HASHES; h++) {
+                long combined = h1 + h * h2;
+                combined ^= combined >>> 29;
+                int value = (int) ((combined * 0xbf58476d1ce4e5b9L) >>> 33);
+                if (value < signature[h]) {
+                    signature[h] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    // Finalizer of MurmurHash3's 64-bit variant
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static long bucketKey(int[] signature, int band) {
+        long key = band;
+        for (int row = band * ROWS_PER_BAND; row < (band + 1) * ROWS_PER_BAND; row++) {
+            key = key * 31 + signature[row];
+        }
+        return key;
+    }
+
+    private static double estimateSimilarity(int[] first, int[] second) {
+        int matches = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (first[i] == second[i]) {
+                matches++;
+            }
+        }
+        return (double) matches / NUM_HASHES;
+    }
+
+    private static class ScoredPosition {
+        private final int position;
+        private final double score;
+
+        ScoredPosition(int position, double score) {
+            this.position = position;
+            this.score = score;
+        }
+    }
+
+    public static class Candidate {
+        private final String xpath;
+        private final String description;
+        private final double score;
+
+        Candidate(String xpath, String description, double score) {
+            this.xpath = xpath;
+            this.description = description;
+            this.score = score;
+        }
+
+        public String getXpath() { return xpath; }
+        public String getDescription() { return description; }
+        public double getScore() { return score; }
+
+        @Override
+        public String toString() {
+            return String.format("%s (score %.2f) -> %s", xpath, score, description);
+        }
+    }
+}
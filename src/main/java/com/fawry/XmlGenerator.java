@@ -4,6 +4,7 @@ import com.fawry.utilities.Log;
 import io.appium.java_client.AppiumDriver;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
@@ -17,16 +18,37 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class XmlGenerator {
     private AppiumDriver driver;
     private static final String XML_OUTPUT_DIR = "xml_snapshots";
     private static final DateTimeFormatter FILE_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
     private static boolean filesCleaned = false;
+    private Document lastDocument;
+    private String lastPageSource;
+
+    // Similarity index of the last snapshot, kept across heals until the page source changes
+    private static SimilarityIndex cachedIndex;
+    private static String cachedIndexPageSource;
+    private static final Pattern ELEMENT_PATTERN = Pattern.compile("<([\\w.:-]+)([^>]*)>");
+    private static final Pattern ID_ATTRIBUTE_PATTERN = Pattern.compile("\\s(resource-id|identifier|name)=\"([^\"]*)\"");
+
+    // Identifying attributes in order of preference; XCUITest sources have no resource-id
+    private static final List<String> ID_ATTRIBUTES = List.of("resource-id", "identifier", "name");
+
+    // On these iOS types @name falls back to the displayed text, which varies within one screen
+    private static final Set<String> IOS_TEXT_TYPES = Set.of(
+            "XCUIElementTypeStaticText", "XCUIElementTypeTextField", "XCUIElementTypeSecureTextField",
+            "XCUIElementTypeTextView");
 
     public void setDriver(AppiumDriver driver) {
         this.driver = driver;
@@ -63,14 +85,20 @@ public class XmlGenerator {
             throw new IllegalStateException("Driver has not been set. Call setDriver() first.");
         }
         String pageSource = driver.getPageSource();
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Document document = builder.parse(new InputSource(new StringReader(pageSource)));
+        Document document = parsePageSource(pageSource);
+        lastDocument = document;
+        lastPageSource = pageSource;
         List<String> xpaths = generateAllXPaths(document);
         String enhancedXml = createEnhancedXml(document, xpaths);
         saveXmlToFile(enhancedXml, xpaths);
     }
 
+    public static Document parsePageSource(String pageSource) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        return builder.parse(new InputSource(new StringReader(pageSource)));
+    }
+
     private List<String> generateAllXPaths(Document document) {
         List<String> xpaths = new ArrayList<>();
         NodeList allElements = document.getElementsByTagName("*");
@@ -102,6 +130,104 @@ public class XmlGenerator {
         return xpath.toString();
     }
 
+    /**
+     * Same as generateXPath, but adds a position to every level whose tag and resource-id
+     * are shared by several siblings, so list rows get distinct XPaths.
+     */
+    static String generateIndexedXPath(Element element) {
+        Deque<String> hierarchy = new ArrayDeque<>();
+        for (Element current = element; current != null; current = (current.getParentNode() instanceof Element) ? (Element) current.getParentNode() : null) {
+            String tagName = current.getTagName();
+            String id = current.getAttribute("resource-id");
+            String level = id.isEmpty() ? tagName : tagName + "[@resource-id='" + id + "']";
+
+            int position = 0;
+            int matches = 0;
+            for (Node sibling = current.getParentNode() != null ? current.getParentNode().getFirstChild() : current;
+                 sibling != null; sibling = sibling.getNextSibling()) {
+                if (sibling instanceof Element && ((Element) sibling).getTagName().equals(tagName)
+                        && ((Element) sibling).getAttribute("resource-id").equals(id)) {
+                    matches++;
+                    if (sibling == current) {
+                        position = matches;
+                    }
+                }
+            }
+            hierarchy.addFirst(matches > 1 ? level + "[" + position + "]" : level);
+        }
+        StringBuilder xpath = new StringBuilder();
+        for (String level : hierarchy) {
+            xpath.append("/").append(level);
+        }
+        return xpath.toString();
+    }
+
+    /**
+     * Returns the similarity index for the last snapshot taken by generatePageXML().
+     * The index is only rebuilt when the page source differs from the one it was built from.
+     */
+    public SimilarityIndex getSimilarityIndex() {
+        if (lastDocument == null) {
+            throw new IllegalStateException("No page snapshot available. Call generatePageXML() first.");
+        }
+        synchronized (XmlGenerator.class) {
+            if (cachedIndex == null || !lastPageSource.equals(cachedIndexPageSource)) {
+                cachedIndex = new SimilarityIndex(lastDocument);
+                cachedIndexPageSource = lastPageSource;
+            } else {
+                Log.info("Reusing similarity index for unchanged page source.");
+            }
+            return cachedIndex;
+        }
+    }
+
+    /**
+     * Hashes the distinct (tag, id) pairs of a page source, ignoring text, bounds,
+     * element order and repetition, so the same screen yields the same fingerprint whatever
+     * the scroll position or screen size (i.e. however many list rows are rendered).
+     * The id is the resource-id on Android and the identifier/name (accessibility id) on iOS.
+     */
+    public static String screenFingerprint(String pageSource) {
+        Set<String> structure = new TreeSet<>();
+        Matcher element = ELEMENT_PATTERN.matcher(pageSource);
+        while (element.find()) {
+            structure.add(element.group(1) + "|" + identifyingAttribute(element.group(1), element.group(2)));
+        }
+        return sha256Prefix(String.join("\n", structure));
+    }
+
+    private static String identifyingAttribute(String tagName, String attributes) {
+        Map<String, String> ids = new HashMap<>();
+        Matcher attribute = ID_ATTRIBUTE_PATTERN.matcher(attributes);
+        while (attribute.find()) {
+            ids.put(attribute.group(1), attribute.group(2));
+        }
+        for (String name : ID_ATTRIBUTES) {
+            String value = ids.get(name);
+            if (value != null && !value.isEmpty() && !("name".equals(name) && IOS_TEXT_TYPES.contains(tagName))) {
+                return value;
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Hashes the whole page source, so any change on screen (text, scroll position, bounds)
+     * yields a new fingerprint. Used where element handles, not locators, are cached.
+     */
+    public static String pageSourceFingerprint(String pageSource) {
+        return sha256Prefix(pageSource);
+    }
+
+    private static String sha256Prefix(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     private String createEnhancedXml(Document document, List<String> xpaths) throws Exception {
         int total = xpaths.size();
         String xpathComment = "<!-- \nGenerated XML with all available XPaths\nTotal XPaths found: " + total +
@@ -0,0 +1,92 @@
+package com.fawry.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fawry.utilities.Log;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * Shared cache stored on a volume mounted by every node.
+ * Each entry is a small JSON file under {@code <directory>/<appBuild>/}; writers serialise on
+ * a lock file and publish entries with an atomic move, so readers never need to lock.
+ */
+public class FileSharedLocatorCache implements SharedLocatorCache {
+    private static final String LOCK_FILE = ".lock";
+
+    private final Path directory;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public FileSharedLocatorCache(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            Log.error("Failed to initialize shared cache directory: " + directory, e);
+        }
+    }
+
+    @Override
+    public String get(String appBuild, String screenFingerprint, String locator) {
+        Path entry = entryPath(appBuild, screenFingerprint, locator);
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try {
+            JsonNode node = mapper.readTree(entry.toFile());
+            return node.path("healedLocator").asText(null);
+        } catch (IOException e) {
+            Log.error("Failed to read shared cache entry: " + entry, e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void put(String appBuild, String screenFingerprint, String locator, String healedLocator) {
+        Path entry = entryPath(appBuild, screenFingerprint, locator);
+        ObjectNode node = mapper.createObjectNode();
+        node.put("appBuild", appBuild);
+        node.put("screenFingerprint", screenFingerprint);
+        node.put("locator", locator);
+        node.put("healedLocator", healedLocator);
+        node.put("updatedAt", Instant.now().toString());
+
+        try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            Files.createDirectories(entry.getParent());
+            Path temp = Files.createTempFile(entry.getParent(), "entry", ".tmp");
+            Files.writeString(temp, mapper.writeValueAsString(node));
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Log.error("Failed to write shared cache entry: " + entry, e);
+        }
+    }
+
+    private Path entryPath(String appBuild, String screenFingerprint, String locator) {
+        String buildDirectory = appBuild.replaceAll("[^A-Za-z0-9._-]", "_");
+        return directory.resolve(buildDirectory).resolve(sha256(screenFingerprint + "|" + locator) + ".json");
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
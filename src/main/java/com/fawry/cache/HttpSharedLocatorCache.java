@@ -0,0 +1,79 @@
+package com.fawry.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fawry.utilities.Log;
+import okhttp3.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client for a small HTTP cache service (can run locally or next to the grid hub).
+ * <pre>
+ * GET {baseUrl}/locators?appBuild=..&amp;screen=..&amp;locator=..  -> 200 {"healedLocator": "..."} | 404
+ * PUT {baseUrl}/locators  {"appBuild", "screenFingerprint", "locator", "healedLocator"}
+ * </pre>
+ */
+public class HttpSharedLocatorCache implements SharedLocatorCache {
+    private final HttpUrl locatorsUrl;
+    private final OkHttpClient httpClient;
+    private final ObjectMapper mapper;
+
+    public HttpSharedLocatorCache(String baseUrl) {
+        this.locatorsUrl = HttpUrl.get(baseUrl).newBuilder().addPathSegment("locators").build();
+        this.httpClient = new OkHttpClient.Builder()
+                .connectTimeout(2, TimeUnit.SECONDS)
+                .readTimeout(2, TimeUnit.SECONDS)
+                .build();
+        this.mapper = new ObjectMapper();
+    }
+
+    @Override
+    public String get(String appBuild, String screenFingerprint, String locator) {
+        HttpUrl url = locatorsUrl.newBuilder()
+                .addQueryParameter("appBuild", appBuild)
+                .addQueryParameter("screen", screenFingerprint)
+                .addQueryParameter("locator", locator)
+                .build();
+        Request request = new Request.Builder().url(url).get().build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (response.code() == 404 || response.body() == null) {
+                return null;
+            }
+            if (!response.isSuccessful()) {
+                Log.info("Shared cache lookup failed. Status: " + response.code());
+                return null;
+            }
+            JsonNode root = mapper.readTree(response.body().string());
+            return root.path("healedLocator").asText(null);
+        } catch (IOException e) {
+            Log.error("Shared cache lookup failed", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String appBuild, String screenFingerprint, String locator, String healedLocator) {
+        ObjectNode body = mapper.createObjectNode();
+        body.put("appBuild", appBuild);
+        body.put("screenFingerprint", screenFingerprint);
+        body.put("locator", locator);
+        body.put("healedLocator", healedLocator);
+
+        Request request = new Request.Builder()
+                .url(locatorsUrl)
+                .put(RequestBody.create(body.toString(), MediaType.parse("application/json")))
+                .build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                Log.info("Shared cache write failed. Status: " + response.code());
+            }
+        } catch (IOException e) {
+            Log.error("Shared cache write failed", e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.fawry.cache;
+
+/**
+ * Cache tier shared by every JVM running the library (e.g. all nodes of a device grid),
+ * so a locator healed on one node is reused by the others instead of being healed again.
+ * Entries are versioned by app build and screen fingerprint.
+ */
+public interface SharedLocatorCache {
+
+    /**
+     * Returns the healed locator stored for the given key, or null when there is none.
+     */
+    String get(String appBuild, String screenFingerprint, String locator);
+
+    void put(String appBuild, String screenFingerprint, String locator, String healedLocator);
+}
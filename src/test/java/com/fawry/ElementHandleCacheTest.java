@@ -0,0 +1,100 @@
+package com.fawry;
+
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class ElementHandleCacheTest {
+
+    private static WebElement element(String text) {
+        return (WebElement) Proxy.newProxyInstance(WebElement.class.getClassLoader(), new Class<?>[]{WebElement.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getText": return text;
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "equals": return proxy == args[0];
+                        case "toString": return "element(" + text + ")";
+                        default: return null;
+                    }
+                });
+    }
+
+    private static WebElement staleElement() {
+        return (WebElement) Proxy.newProxyInstance(WebElement.class.getClassLoader(), new Class<?>[]{WebElement.class},
+                (proxy, method, args) -> {
+                    if ("toString".equals(method.getName())) {
+                        return "stale";
+                    }
+                    throw new StaleElementReferenceException("stale");
+                });
+    }
+
+    @Test
+    public void returnsHandlesForSameFingerprint() {
+        ElementHandleCache cache = new ElementHandleCache(60_000);
+        WebElement button = element("Pay");
+        cache.put("screen-a", "element|session:1|By.id: pay", List.of(button));
+
+        assertSame(cache.get("screen-a", "element|session:1|By.id: pay").get(0), button);
+        assertNull(cache.get("screen-a", "element|session:2|By.id: pay"));
+    }
+
+    @Test
+    public void dropsHandlesWhenFingerprintChanges() {
+        ElementHandleCache cache = new ElementHandleCache(60_000);
+        cache.put("screen-a", "key", List.of(element("Pay")));
+
+        assertNull(cache.get("screen-b", "key"));
+        assertNull(cache.get("screen-a", "key"));
+    }
+
+    @Test
+    public void dropsExpiredHandles() throws InterruptedException {
+        ElementHandleCache cache = new ElementHandleCache(1);
+        cache.put("screen-a", "key", List.of(element("Pay")));
+        Thread.sleep(10);
+
+        assertNull(cache.get("screen-a", "key"));
+    }
+
+    @Test
+    public void storedListCannotBeMutatedByCallers() {
+        ElementHandleCache cache = new ElementHandleCache(60_000);
+        List<WebElement> elements = new ArrayList<>(List.of(element("a"), element("b")));
+        cache.put("screen-a", "key", elements);
+        elements.clear();
+
+        List<WebElement> cached = cache.get("screen-a", "key");
+        assertEquals(cached.size(), 2);
+        assertThrows(UnsupportedOperationException.class, cached::clear);
+    }
+
+    @Test
+    public void staleReusedHandleInvalidatesAndResolvesOnce() {
+        AtomicInteger invalidations = new AtomicInteger();
+        AtomicInteger resolutions = new AtomicInteger();
+        ReusedWebElement reused = new ReusedWebElement(staleElement(), invalidations::incrementAndGet, () -> {
+            resolutions.incrementAndGet();
+            return element("Pay");
+        });
+
+        assertEquals(reused.getText(), "Pay");
+        assertEquals(reused.getText(), "Pay");
+        assertEquals(invalidations.get(), 1);
+        assertEquals(resolutions.get(), 1);
+    }
+
+    @Test
+    public void staleReusedHandleRethrowsWhenElementIsGone() {
+        ReusedWebElement reused = new ReusedWebElement(staleElement(), () -> { }, () -> null);
+
+        assertThrows(StaleElementReferenceException.class, reused::getText);
+    }
+}
@@ -0,0 +1,130 @@
+package com.fawry;
+
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.testng.Assert.*;
+
+public class LocatorRewriteRulesTest {
+
+    private static final String ANDROID_SCREEN =
+            "<hierarchy>"
+                    + "<android.widget.FrameLayout resource-id=\"com.shop.v2:id/content\">"
+                    + "<android.widget.Button resource-id=\"com.shop.v2:id/pay\" text=\"Pay\"/>"
+                    + "<android.widget.Button resource-id=\"com.shop.v2:id/cancel\" text=\"Cancel\"/>"
+                    + "<android.widget.EditText resource-id=\"com.shop.v2:id/amount\" text=\"\"/>"
+                    + "</android.widget.FrameLayout>"
+                    + "</hierarchy>";
+
+    private static final String IOS_SCREEN =
+            "<AppiumAUT>"
+                    + "<XCUIElementTypeApplication name=\"Shop\">"
+                    + "<XCUIElementTypeButton name=\"pay_v2\" label=\"Pay\"/>"
+                    + "</XCUIElementTypeApplication>"
+                    + "</AppiumAUT>";
+
+    private static LocatorRewriteRules newRules() throws Exception {
+        return new LocatorRewriteRules(Files.createTempDirectory("rules").resolve("healing_rules.json"));
+    }
+
+    private static Document screen(String pageSource) throws Exception {
+        return XmlGenerator.parsePageSource(pageSource);
+    }
+
+    @Test
+    public void prefixRenameHealsTheRestOfTheFamily() throws Exception {
+        LocatorRewriteRules rules = newRules();
+        rules.learn("By.id: com.shop:id/pay", "//android.widget.Button[@resource-id='com.shop.v2:id/pay']");
+
+        assertEquals(rules.getRules().size(), 1);
+        assertEquals(rules.getRules().get(0).getKind(), LocatorRewriteRules.Kind.PREFIX);
+        assertEquals(rules.rewrite("By.id: com.shop:id/cancel", screen(ANDROID_SCREEN)),
+                "//*[@resource-id='com.shop.v2:id/cancel']");
+        assertEquals(rules.rewrite("By.xpath: //android.widget.EditText[@resource-id='com.shop:id/amount']",
+                screen(ANDROID_SCREEN)), "//android.widget.EditText[@resource-id='com.shop.v2:id/amount']");
+        assertNull(rules.rewrite("By.id: com.shop:id/missing", screen(ANDROID_SCREEN)));
+    }
+
+    @Test
+    public void restructuredHealTeachesNoClassRename() throws Exception {
+        LocatorRewriteRules rules = newRules();
+        String original = "By.xpath: //android.widget.FrameLayout/android.widget.Button[@text='Pay']";
+        String healed = "//android.widget.Button[@resource-id='com.shop.v2:id/pay']";
+        rules.learn(original, healed);
+        rules.learn(original, healed);
+
+        assertTrue(rules.getRules().isEmpty());
+        assertNull(rules.rewrite("By.xpath: //android.widget.FrameLayout[@text='Total']", screen(ANDROID_SCREEN)));
+    }
+
+    @Test
+    public void classRenameNeedsASecondHeal() throws Exception {
+        LocatorRewriteRules rules = newRules();
+        String failing = "By.xpath: //android.widget.TextView[@resource-id='com.shop.v2:id/cancel']";
+        rules.learn("By.xpath: //android.widget.TextView[@resource-id='com.shop.v2:id/pay']",
+                "//android.widget.Button[@resource-id='com.shop.v2:id/pay']");
+
+        assertNull(rules.rewrite(failing, screen(ANDROID_SCREEN)));
+
+        rules.learn("By.xpath: //android.widget.TextView[@text='Pay']", "//android.widget.Button[@text='Pay']");
+
+        assertEquals(rules.rewrite(failing, screen(ANDROID_SCREEN)),
+                "//android.widget.Button[@resource-id='com.shop.v2:id/cancel']");
+    }
+
+    @Test
+    public void attributeSwapNeedsASecondHeal() throws Exception {
+        LocatorRewriteRules rules = newRules();
+        rules.learn("By.xpath: //XCUIElementTypeButton[@name='Pay']", "//XCUIElementTypeButton[@label='Pay']");
+
+        assertEquals(rules.getRules().get(0).getKind(), LocatorRewriteRules.Kind.ATTRIBUTE);
+        assertNull(rules.rewrite("By.xpath: //XCUIElementTypeButton[@name='Pay']", screen(IOS_SCREEN)));
+
+        rules.learn("By.xpath: //XCUIElementTypeStaticText[@name='Total']", "//XCUIElementTypeStaticText[@label='Total']");
+
+        assertEquals(rules.rewrite("By.xpath: //XCUIElementTypeButton[@name='Pay']", screen(IOS_SCREEN)),
+                "//XCUIElementTypeButton[@label='Pay']");
+    }
+
+    @Test
+    public void iosIdIsTheAccessibilityId() throws Exception {
+        LocatorRewriteRules rules = newRules();
+        rules.learn("By.id: Pay", "//XCUIElementTypeButton[@label='Pay']");
+        rules.learn("By.id: Total", "//XCUIElementTypeStaticText[@label='Total']");
+
+        assertEquals(rules.getRules().size(), 1);
+        assertEquals(rules.getRules().get(0).getFrom(), "name");
+        assertEquals(rules.rewrite("By.id: Pay", screen(IOS_SCREEN)), "//*[@label='Pay']");
+    }
+
+    @Test
+    public void rulesSurviveARestart() throws Exception {
+        Path file = Files.createTempDirectory("rules").resolve("healing_rules.json");
+        new LocatorRewriteRules(file).learn("By.id: com.shop:id/pay",
+                "//android.widget.Button[@resource-id='com.shop.v2:id/pay']");
+
+        LocatorRewriteRules reloaded = new LocatorRewriteRules(file);
+
+        assertEquals(reloaded.getRules().size(), 1);
+        assertEquals(reloaded.getRules().get(0).getFrom(), "com.shop:id/");
+        assertEquals(reloaded.getRules().get(0).getTo(), "com.shop.v2:id/");
+    }
+
+    @Test
+    public void corruptRulesFileIsKeptAside() throws Exception {
+        Path file = Files.createTempDirectory("rules").resolve("healing_rules.json");
+        Files.writeString(file, "[{\"kind\": \"PREFIX\", \"from\": ");
+
+        LocatorRewriteRules rules = new LocatorRewriteRules(file);
+        assertTrue(rules.getRules().isEmpty());
+
+        rules.learn("By.id: com.shop:id/pay", "//android.widget.Button[@resource-id='com.shop.v2:id/pay']");
+
+        Path corrupt = file.resolveSibling("healing_rules.json.corrupt");
+        assertEquals(Files.readString(corrupt), "[{\"kind\": \"PREFIX\", \"from\": ");
+        assertEquals(new LocatorRewriteRules(file).getRules().size(), 1);
+    }
+}
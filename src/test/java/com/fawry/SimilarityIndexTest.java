@@ -0,0 +1,66 @@
+package com.fawry;
+
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+public class SimilarityIndexTest {
+
+    private static Document recyclerViewScreen(int rows) throws Exception {
+        StringBuilder xml = new StringBuilder("<hierarchy>")
+                .append("<androidx.recyclerview.widget.RecyclerView resource-id=\"com.fawry.retailer:id/list\" package=\"com.fawry.retailer\">");
+        for (int i = 0; i < rows; i++) {
+            xml.append("<android.widget.LinearLayout resource-id=\"com.fawry.retailer:id/row\" class=\"android.widget.LinearLayout\" package=\"com.fawry.retailer\">")
+                    .append("<android.widget.TextView resource-id=\"com.fawry.retailer:id/title\" class=\"android.widget.TextView\" package=\"com.fawry.retailer\" text=\"Item ").append(i).append("\"/>")
+                    .append("<android.widget.Button resource-id=\"com.fawry.retailer:id/pay_").append(i).append("\" class=\"android.widget.Button\" package=\"com.fawry.retailer\" text=\"Pay\"/>")
+                    .append("</android.widget.LinearLayout>");
+        }
+        xml.append("</androidx.recyclerview.widget.RecyclerView>")
+                .append("<android.widget.Button resource-id=\"com.fawry.retailer:id/btn_submit_payment\" class=\"android.widget.Button\" package=\"com.fawry.retailer\" text=\"Submit payment\"/>")
+                .append("</hierarchy>");
+        return XmlGenerator.parsePageSource(xml.toString());
+    }
+
+    @Test
+    public void findsRenamedElementAmongListRows() throws Exception {
+        SimilarityIndex index = new SimilarityIndex(recyclerViewScreen(2000));
+
+        List<SimilarityIndex.Candidate> nearest =
+                index.findNearest("//android.widget.Button[@resource-id='com.fawry.retailer:id/btn_submit_pay']", 3);
+
+        assertFalse(nearest.isEmpty());
+        assertTrue(nearest.get(0).getXpath().endsWith("[@resource-id='com.fawry.retailer:id/btn_submit_payment']"));
+    }
+
+    @Test
+    public void scoresOnlyAFractionOfTheTree() throws Exception {
+        SimilarityIndex index = new SimilarityIndex(recyclerViewScreen(2000));
+
+        int buttonCandidates = index.countCandidates("By.id: com.fawry.retailer:id/btn_submit_payment_v2");
+        int rowCandidates = index.countCandidates("//android.widget.TextView[@text='Item 42']");
+
+        assertTrue(buttonCandidates <= SimilarityIndex.MAX_CANDIDATES);
+        assertTrue(rowCandidates <= SimilarityIndex.MAX_CANDIDATES);
+        assertTrue(buttonCandidates < index.size() / 20, "candidates: " + buttonCandidates);
+    }
+
+    @Test
+    public void listRowCandidatesHaveDistinctXPaths() throws Exception {
+        SimilarityIndex index = new SimilarityIndex(recyclerViewScreen(50));
+
+        List<SimilarityIndex.Candidate> nearest =
+                index.findNearest("//android.widget.LinearLayout[@resource-id='com.fawry.retailer:id/row']", 3);
+
+        Set<String> xpaths = new HashSet<>();
+        for (SimilarityIndex.Candidate candidate : nearest) {
+            xpaths.add(candidate.getXpath());
+        }
+        assertEquals(nearest.size(), 3);
+        assertEquals(xpaths.size(), 3);
+    }
+}
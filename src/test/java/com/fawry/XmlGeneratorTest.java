@@ -0,0 +1,44 @@
+package com.fawry;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class XmlGeneratorTest {
+
+    private static String androidList(int rows) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?><hierarchy>")
+                .append("<androidx.recyclerview.widget.RecyclerView resource-id=\"com.fawry.retailer:id/list\">");
+        for (int i = 0; i < rows; i++) {
+            xml.append("<android.widget.TextView resource-id=\"com.fawry.retailer:id/title\" text=\"Item ")
+                    .append(i).append("\" bounds=\"[0,").append(i * 100).append("][1080,").append(i * 100 + 90).append("]\"/>");
+        }
+        return xml.append("</androidx.recyclerview.widget.RecyclerView></hierarchy>").toString();
+    }
+
+    private static String iosScreen(String buttonName, String text) {
+        return "<?xml version=\"1.0\"?><AppiumAUT><XCUIElementTypeApplication type=\"XCUIElementTypeApplication\" name=\"Retailer\">"
+                + "<XCUIElementTypeButton type=\"XCUIElementTypeButton\" name=\"" + buttonName + "\" label=\"" + buttonName + "\"/>"
+                + "<XCUIElementTypeStaticText type=\"XCUIElementTypeStaticText\" name=\"" + text + "\" label=\"" + text + "\"/>"
+                + "</XCUIElementTypeApplication></AppiumAUT>";
+    }
+
+    @Test
+    public void fingerprintIgnoresRowCountAndText() {
+        assertEquals(XmlGenerator.screenFingerprint(androidList(5)), XmlGenerator.screenFingerprint(androidList(12)));
+    }
+
+    @Test
+    public void fingerprintChangesWithResourceIds() {
+        String renamed = androidList(5).replace("id/title", "id/subtitle");
+        assertNotEquals(XmlGenerator.screenFingerprint(androidList(5)), XmlGenerator.screenFingerprint(renamed));
+    }
+
+    @Test
+    public void iosFingerprintUsesAccessibilityIdsButNotDisplayedText() {
+        String login = XmlGenerator.screenFingerprint(iosScreen("loginBtn", "Welcome"));
+
+        assertEquals(XmlGenerator.screenFingerprint(iosScreen("loginBtn", "Welcome back, Ahmed")), login);
+        assertNotEquals(XmlGenerator.screenFingerprint(iosScreen("payBtn", "Welcome")), login);
+    }
+}